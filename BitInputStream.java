@@ -139,6 +139,23 @@ public class BitInputStream extends InputStream
 		return bitcount;
 	}
 
+	/** Count the 0 bits before the next 1 bit, and consume them and the 1 bit.
+	 * The buffer is scanned with numberOfLeadingZeros instead of bit by bit.
+	 * */
+	private int readZerosUntilOne () throws IOException
+	{
+		int zeros = 0;
+		while (buffer == 0) {
+			zeros += buflen;
+			buflen = 0;
+			reserve(8);
+		}
+		int z = Integer.numberOfLeadingZeros(buffer) - (32 - buflen);
+		buflen -= z + 1;
+		buffer &= (1 << buflen) - 1;
+		return zeros + z;
+	}
+
 	private int readFixedIntUnchecked (int bits)
 	{
 		assert bits > 0 && buflen >= bits;
@@ -174,9 +191,7 @@ public class BitInputStream extends InputStream
 	 * */
 	public int readEliasGamma () throws IOException
 	{
-		int bitcount = 0;
-		while (!readBoolean())
-			bitcount ++;
+		int bitcount = readZerosUntilOne();
 		if (bitcount > 30)
 			throw new IllegalArgumentException("number too big to fit in int type"); //TODO: is there a better fit exception?
 		if (bitcount == 0) {
@@ -191,9 +206,7 @@ public class BitInputStream extends InputStream
 	 * */
 	public long readEliasGammaLong () throws IOException
 	{
-		int bitcount = 0;
-		while (!readBoolean())
-			bitcount ++;
+		int bitcount = readZerosUntilOne();
 		if (bitcount > 62)
 			throw new IllegalArgumentException("number too big to fit in long type"); //TODO: is there a better fit exception?
 		if (bitcount == 0) {
@@ -250,6 +263,215 @@ public class BitInputStream extends InputStream
 		return k == 0 ? n : (n << k) | readFixedInt(k);
 	}
 
+	/** read <i>bits</i> bits, 0 &le; bits &le; 63 */
+	private long readFixedLong (int bits) throws IOException
+	{
+		long retval = 0;
+		while (bits > 0) {
+			int toread = Math.min(31, bits);
+			bits -= toread;
+			retval = (retval << toread) | readFixedInt(toread);
+		}
+		return retval;
+	}
+
+	/** Elias Delta code.
+	 * @return n (1 &le; n &le; Integer.MAX_VALUE)
+	 * */
+	public int readEliasDelta () throws IOException
+	{
+		int bits = readEliasGamma();
+		if (bits > 31)
+			throw new IllegalArgumentException("number too big to fit in int type");
+		return bits == 1 ? 1 : (1 << (bits - 1)) | readFixedInt(bits - 1);
+	}
+
+	/** Elias Delta code.
+	 * @return n (1 &le; n &le; Long.MAX_VALUE)
+	 * */
+	public long readEliasDeltaLong () throws IOException
+	{
+		int bits = readEliasGamma();
+		if (bits > 63)
+			throw new IllegalArgumentException("number too big to fit in long type");
+		return (1l << (bits - 1)) | readFixedLong(bits - 1);
+	}
+
+	/** Read len Elias Delta codes into arr[off .. off+len-1].
+	 * */
+	public void readEliasDelta (int [] arr, int off, int len) throws IOException
+	{
+		for (int i = off; i < off + len; i ++)
+			arr[i] = readEliasDelta();
+	}
+
+	/** Read len Elias Delta codes into arr[off .. off+len-1].
+	 * */
+	public void readEliasDeltaLong (long [] arr, int off, int len) throws IOException
+	{
+		for (int i = off; i < off + len; i ++)
+			arr[i] = readEliasDeltaLong();
+	}
+
+	/** Elias Omega code.
+	 * @return n (1 &le; n &le; Integer.MAX_VALUE)
+	 * */
+	public int readEliasOmega () throws IOException
+	{
+		long n = readEliasOmegaLong();
+		if (n > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("number too big to fit in int type");
+		return (int)n;
+	}
+
+	/** Elias Omega code.
+	 * @return n (1 &le; n &le; Long.MAX_VALUE)
+	 * */
+	public long readEliasOmegaLong () throws IOException
+	{
+		long n = 1;
+		while (readBit() != 0) {
+			// the 1 just read is the leading bit of a group of n+1 bits
+			if (n > 62)
+				throw new IllegalArgumentException("number too big to fit in long type");
+			n = (1l << n) | readFixedLong((int)n);
+		}
+		return n;
+	}
+
+	/** Read len Elias Omega codes into arr[off .. off+len-1].
+	 * */
+	public void readEliasOmega (int [] arr, int off, int len) throws IOException
+	{
+		for (int i = off; i < off + len; i ++)
+			arr[i] = readEliasOmega();
+	}
+
+	/** Read len Elias Omega codes into arr[off .. off+len-1].
+	 * */
+	public void readEliasOmegaLong (long [] arr, int off, int len) throws IOException
+	{
+		for (int i = off; i < off + len; i ++)
+			arr[i] = readEliasOmegaLong();
+	}
+
+	/** Call sync() and then read an unsigned LEB128 value written by writeVarInt.
+	 * */
+	public int readVarInt () throws IOException
+	{
+		long n = readVarLong();
+		if ((n >>> 32) != 0)
+			throw new IllegalArgumentException("number too big to fit in int type");
+		return (int)n;
+	}
+
+	/** Call sync() and then read an unsigned LEB128 value written by writeVarLong.
+	 * */
+	public long readVarLong () throws IOException
+	{
+		sync();
+		long n = 0;
+		for (int shift = 0; ; shift += 7) {
+			int b = in.read();
+			if (b == -1)
+				throw new EOFException();
+			if (shift == 63 && b > 1)
+				throw new IllegalArgumentException("number too big to fit in long type");
+			n |= (long)(b & 0x7f) << shift;
+			if (b < 0x80)
+				return n;
+		}
+	}
+
+	/** byte length of each value for every control byte of Group Varint and Stream VByte */
+	private static final byte [] varLengths = new byte [256 * 4];
+	/** sum of the 4 lengths for every control byte */
+	private static final byte [] varGroupLengths = new byte [256];
+	static {
+		for (int c = 0; c < 256; c ++) {
+			for (int j = 0; j < 4; j ++) {
+				varLengths[c * 4 + j] = (byte)(((c >>> (2 * j)) & 3) + 1);
+				varGroupLengths[c] += varLengths[c * 4 + j];
+			}
+		}
+	}
+
+	private byte [] scratch = new byte [0];
+
+	private byte [] readFully (int len) throws IOException
+	{
+		if (scratch.length < len)
+			scratch = new byte [Math.max(len, scratch.length * 2)];
+		for (int off = 0; off < len; ) {
+			int n = in.read(scratch, off, len - off);
+			if (n == -1)
+				throw new EOFException();
+			off += n;
+		}
+		return scratch;
+	}
+
+	private static int getLittleEndian (byte [] buf, int pos, int len)
+	{
+		int n = buf[pos] & 0xff;
+		for (int i = 1; i < len; i ++)
+			n |= (buf[pos + i] & 0xff) << (8 * i);
+		return n;
+	}
+
+	/** Call sync() and then read len values written by writeGroupVarInt into arr[off .. off+len-1].
+	 * */
+	public void readGroupVarInt (int [] arr, int off, int len) throws IOException
+	{
+		sync();
+		for (int i = off; i < off + len; i += 4) {
+			int control = in.read();
+			if (control == -1)
+				throw new EOFException();
+			int count = Math.min(4, off + len - i);
+			int total = 0;
+			if (count == 4) {
+				total = varGroupLengths[control];
+			} else {
+				for (int j = 0; j < count; j ++)
+					total += varLengths[control * 4 + j];
+			}
+			byte [] buf = readFully(total);
+			int pos = 0;
+			for (int j = 0; j < count; j ++) {
+				int n = varLengths[control * 4 + j];
+				arr[i + j] = getLittleEndian(buf, pos, n);
+				pos += n;
+			}
+		}
+	}
+
+	/** Call sync() and then read len values written by writeStreamVByte into arr[off .. off+len-1].
+	 * All control bytes are read first and the data length is summed from
+	 * the lookup table, so the data is read with a single call.
+	 * */
+	public void readStreamVByte (int [] arr, int off, int len) throws IOException
+	{
+		sync();
+		int controls = (len + 3) / 4;
+		byte [] control = new byte [controls];
+		int total = 0;
+		byte [] buf = readFully(controls);
+		for (int i = 0; i < controls; i ++) {
+			control[i] = buf[i];
+			total += varGroupLengths[buf[i] & 0xff];
+		}
+		// entries past len in the last control byte are 0, meaning 1 byte each, but have no data
+		total -= controls * 4 - len;
+		buf = readFully(total);
+		int pos = 0;
+		for (int i = 0; i < len; i ++) {
+			int n = varLengths[(control[i >>> 2] & 0xff) * 4 + (i & 3)];
+			arr[off + i] = getLittleEndian(buf, pos, n);
+			pos += n;
+		}
+	}
+
 	/** Fibonacci code.
 	 * */
 	public int readFibonacci () throws IOException
@@ -28,7 +28,8 @@ public class BitOutputStream extends OutputStream
 	private OutputStream out;
 	private int buffer;
 	private int buflen;
-	private int outcount;
+	private long outcount;
+	private final byte [] varbuf = new byte [10];
 
 	/** Construct a BitOutputStream using <code>out</code> as the underlying OutputStream.
 	 * Note that BitOutputStream performs single byte write operation to the underlying OutputStream,
@@ -66,6 +67,14 @@ public class BitOutputStream extends OutputStream
 	 * @return total bytes written.
 	 * */
 	public int sync () throws IOException
+	{
+		return (int)syncLong();
+	}
+
+	/** Same as sync(), but the total bytes written is returned as long
+	 * so that it does not overflow on streams larger than 2GB.
+	 * */
+	public long syncLong () throws IOException
 	{
 		reserve();
 		if (buflen > 0) {
@@ -292,6 +301,183 @@ public class BitOutputStream extends OutputStream
 		writeFixedInt((int)n, k);
 	}
 
+	/** write the least <i>bits</i> bits of <i>n</i>, 0 &le; bits &le; 63 */
+	private void writeFixedLong (long n, int bits) throws IOException
+	{
+		while (bits > 0) {
+			reserve();
+			int towrite = Math.min(31, Math.min(32 - buflen, bits));
+			bits -= towrite;
+			writeFixedIntUnchecked((int)(n >>> bits) & ((1 << towrite) - 1), towrite);
+		}
+	}
+
+	/** Elias Delta coding.
+	 * Elias Gamma code of the bit length of n, followed by n without its leading 1.
+	 * @param n  1 &le; n &le; Integer.MAX_VALUE
+	 * */
+	public void writeEliasDelta (int n) throws IOException
+	{
+		writeEliasDelta((long)n);
+	}
+
+	/** Elias Delta coding.
+	 * @param n  1 &le; n &le; Long.MAX_VALUE
+	 * */
+	public void writeEliasDelta (long n) throws IOException
+	{
+		if (n <= 0)
+			throw new IllegalArgumentException("n <= 0 is not allowed in Elias Delta code");
+		int bits = 64 - Long.numberOfLeadingZeros(n);
+		writeEliasGamma(bits);
+		writeFixedLong(n, bits - 1);
+	}
+
+	/** Elias Delta coding of arr[off .. off+len-1].
+	 * */
+	public void writeEliasDelta (int [] arr, int off, int len) throws IOException
+	{
+		for (int i = off; i < off + len; i ++)
+			writeEliasDelta((long)arr[i]);
+	}
+
+	/** Elias Delta coding of arr[off .. off+len-1].
+	 * */
+	public void writeEliasDelta (long [] arr, int off, int len) throws IOException
+	{
+		for (int i = off; i < off + len; i ++)
+			writeEliasDelta(arr[i]);
+	}
+
+	/** Elias Omega coding.
+	 * @param n  1 &le; n &le; Integer.MAX_VALUE
+	 * */
+	public void writeEliasOmega (int n) throws IOException
+	{
+		writeEliasOmega((long)n);
+	}
+
+	/** Elias Omega coding.
+	 * n is written in binary, preceded recursively by the length of the
+	 * previous group minus 1, until the length is 1. A 0 bit ends the code.
+	 * @param n  1 &le; n &le; Long.MAX_VALUE
+	 * */
+	public void writeEliasOmega (long n) throws IOException
+	{
+		if (n <= 0)
+			throw new IllegalArgumentException("n <= 0 is not allowed in Elias Omega code");
+		// groups are produced from the last one, so keep them and write in reverse.
+		// 63 -> 5 -> 2 -> 1, so 4 groups are enough.
+		long [] groups = new long [4];
+		int count = 0;
+		while (n > 1) {
+			groups[count ++] = n;
+			n = 63 - Long.numberOfLeadingZeros(n);
+		}
+		for (int i = count - 1; i >= 0; i --)
+			writeFixedLong(groups[i], 64 - Long.numberOfLeadingZeros(groups[i]));
+		writeBit(0);
+	}
+
+	/** Elias Omega coding of arr[off .. off+len-1].
+	 * */
+	public void writeEliasOmega (int [] arr, int off, int len) throws IOException
+	{
+		for (int i = off; i < off + len; i ++)
+			writeEliasOmega((long)arr[i]);
+	}
+
+	/** Elias Omega coding of arr[off .. off+len-1].
+	 * */
+	public void writeEliasOmega (long [] arr, int off, int len) throws IOException
+	{
+		for (int i = off; i < off + len; i ++)
+			writeEliasOmega(arr[i]);
+	}
+
+	/** Call sync() and then write n as unsigned LEB128:
+	 * 7 bits per byte, least significant group first, the high bit set on all bytes but the last.
+	 * Negative n takes 5 bytes.
+	 * */
+	public void writeVarInt (int n) throws IOException
+	{
+		writeVarLong(n & 0xffffffffl);
+	}
+
+	/** Call sync() and then write n as unsigned LEB128.
+	 * Negative n takes 10 bytes.
+	 * */
+	public void writeVarLong (long n) throws IOException
+	{
+		sync();
+		int len = 0;
+		while ((n & ~0x7fl) != 0) {
+			varbuf[len ++] = (byte)(n | 0x80);
+			n >>>= 7;
+		}
+		varbuf[len ++] = (byte)n;
+		out.write(varbuf, 0, len); outcount += len;
+	}
+
+	/** number of bytes needed by n in Group Varint and Stream VByte, 1 to 4 */
+	private static int varByteLength (int n)
+	{
+		return Math.max(1, (39 - Integer.numberOfLeadingZeros(n)) >>> 3);
+	}
+
+	/** store the least len bytes of n, least significant first */
+	private static int putLittleEndian (byte [] buf, int pos, int n, int len)
+	{
+		for (int i = 0; i < len; i ++)
+			buf[pos ++] = (byte)(n >>> (8 * i));
+		return pos;
+	}
+
+	/** Call sync() and then write arr[off .. off+len-1] in Group Varint format.
+	 * Values are taken in groups of 4. Each group is a control byte, which
+	 * holds the byte length minus 1 of each value in 2 bits, the first value
+	 * in the least significant bits, followed by the values in little-endian.
+	 * The last group may hold fewer than 4 values; the reader has to know len.
+	 * */
+	public void writeGroupVarInt (int [] arr, int off, int len) throws IOException
+	{
+		sync();
+		byte [] buf = new byte [(len + 3) / 4 + len * 4];
+		int pos = 0;
+		for (int i = off; i < off + len; i += 4) {
+			int control = pos ++;
+			int c = 0;
+			for (int j = 0; j < 4 && i + j < off + len; j ++) {
+				int n = varByteLength(arr[i + j]);
+				c |= (n - 1) << (2 * j);
+				pos = putLittleEndian(buf, pos, arr[i + j], n);
+			}
+			buf[control] = (byte)c;
+		}
+		out.write(buf, 0, pos); outcount += pos;
+	}
+
+	/** Call sync() and then write arr[off .. off+len-1] in Stream VByte format.
+	 * Same as Group Varint, except that all the control bytes are written first,
+	 * followed by all the data bytes, so that the reader can find the length
+	 * and position of every value before touching the data.
+	 * The control bytes use the same key order as the published Stream VByte
+	 * (value 0 in the least significant bits), so standard decoders can read it.
+	 * */
+	public void writeStreamVByte (int [] arr, int off, int len) throws IOException
+	{
+		sync();
+		int controls = (len + 3) / 4;
+		byte [] buf = new byte [controls + len * 4];
+		int pos = controls;
+		for (int i = 0; i < len; i ++) {
+			int n = varByteLength(arr[off + i]);
+			buf[i >>> 2] |= (n - 1) << (2 * (i & 3));
+			pos = putLittleEndian(buf, pos, arr[off + i], n);
+		}
+		out.write(buf, 0, pos); outcount += pos;
+	}
+
 	static final int [] fibSeries = {
 		1, 2, 3, 5, 8, 13, 21, 34, 55, 89, 144, 233, 377, 610, 987, 1597, 2584,
 		4181, 6765, 10946, 17711, 28657, 46368, 75025, 121393, 196418, 317811,
@@ -418,4 +604,137 @@ public class BitOutputStream extends OutputStream
 			writeFixedInt(buf2 >>> (92 - fibn), fibn - 61);
 		writeBit(1);
 	}
+
+	/* The functions below return the exact number of bits the corresponding
+	 * write functions produce, without writing anything. They take the same
+	 * arguments and throw IllegalArgumentException in the same cases. */
+
+	/** Length of writeUnary(n)
+	 * @param n n &ge; 0
+	 * */
+	public static int bitLengthUnary (int n)
+	{
+		if (n < 0)
+			throw new IllegalArgumentException("n < 0 is not allowed");
+		return n + 1;
+	}
+
+	/** Length of writeEliasGamma(n)
+	 * @param n  1 &le; n &le; Integer.MAX_VALUE
+	 * */
+	public static int bitLengthEliasGamma (int n)
+	{
+		if (n <= 0)
+			throw new IllegalArgumentException("n <= 0 is not allowed in Elias Gamma code");
+		return 2 * (31 - Integer.numberOfLeadingZeros(n)) + 1;
+	}
+
+	/** Length of writeEliasGamma(n)
+	 * @param n  1 &le; n &le; Long.MAX_VALUE
+	 * */
+	public static int bitLengthEliasGamma (long n)
+	{
+		if (n <= 0)
+			throw new IllegalArgumentException("n <= 0 is not allowed in Elias Gamma code");
+		return 2 * (63 - Long.numberOfLeadingZeros(n)) + 1;
+	}
+
+	/** Length of writeEliasGammaAlt(n)
+	 * @param n  -1073741823 &le; n &le; 1073741823
+	 * */
+	public static int bitLengthEliasGammaAlt (int n)
+	{
+		if (n < -(Integer.MAX_VALUE-1)/2 || n > (Integer.MAX_VALUE-1)/2)
+			throw new IllegalArgumentException("n = " + n + " is not allowed in EliasGammaAlt");
+		return n == 0 ? 1 : bitLengthEliasGamma(n > 0 ? n * 2 : -n * 2 + 1);
+	}
+
+	/** Length of writeExpGolombK(n, k)
+	 * @param n  0 &le; n &le; Integer.MAX_VALUE - 1
+	 * @param k  0 &le; k &le; 31
+	 * */
+	public static int bitLengthExpGolombK (int n, int k)
+	{
+		if (k < 0 || k > 31)
+			throw new IllegalArgumentException("invalid k");
+		return bitLengthEliasGamma((n >>> k) + 1) + k;
+	}
+
+	/** Length of writeExpGolombK(n, k)
+	 * @param n  0 &le; n &le; Long.MAX_VALUE - 1
+	 * @param k  0 &le; k &le; 31
+	 * */
+	public static int bitLengthExpGolombK (long n, int k)
+	{
+		if (k < 0 || k > 31)
+			throw new IllegalArgumentException("invalid k");
+		return bitLengthEliasGamma((n >>> k) + 1) + k;
+	}
+
+	/** largest i such that fibSeriesLong[i] &le; 2^(b-1), for 1 &le; b &le; 63 */
+	private static final int [] fibIndexByBits = new int [64];
+	static {
+		for (int b = 1; b < 64; b ++) {
+			int i = 0;
+			while (i + 1 < fibSeriesLong.length && fibSeriesLong[i + 1] <= 1l << (b - 1))
+				i ++;
+			fibIndexByBits[b] = i;
+		}
+	}
+
+	/** Length of writeFibonacci(n)
+	 * @param n 1 &le; n &le; Integer.MAX_VALUE
+	 * */
+	public static int bitLengthFibonacci (int n)
+	{
+		return bitLengthFibonacci((long)n);
+	}
+
+	/** Length of writeFibonacci(n)
+	 * @param n 1 &le; n &le; Long.MAX_VALUE
+	 * */
+	public static int bitLengthFibonacci (long n)
+	{
+		if (n <= 0)
+			throw new IllegalArgumentException("n <= 0 is not allowed in Fibonacci code");
+		// a power-of-2 range holds at most 2 Fibonacci numbers, so the loop runs at most twice.
+		int i = fibIndexByBits[64 - Long.numberOfLeadingZeros(n)];
+		while (i + 1 < fibSeriesLong.length && fibSeriesLong[i + 1] <= n)
+			i ++;
+		return i + 2;
+	}
+
+	/** Length of writeEliasDelta(n)
+	 * @param n  1 &le; n &le; Long.MAX_VALUE
+	 * */
+	public static int bitLengthEliasDelta (long n)
+	{
+		if (n <= 0)
+			throw new IllegalArgumentException("n <= 0 is not allowed in Elias Delta code");
+		int bits = 64 - Long.numberOfLeadingZeros(n);
+		return bitLengthEliasGamma(bits) + bits - 1;
+	}
+
+	/** Length of writeEliasOmega(n)
+	 * @param n  1 &le; n &le; Long.MAX_VALUE
+	 * */
+	public static int bitLengthEliasOmega (long n)
+	{
+		if (n <= 0)
+			throw new IllegalArgumentException("n <= 0 is not allowed in Elias Omega code");
+		int total = 1;
+		while (n > 1) {
+			int bits = 64 - Long.numberOfLeadingZeros(n);
+			total += bits;
+			n = bits - 1;
+		}
+		return total;
+	}
+
+	/** Length of writeVarLong(n), excluding the bits padded by sync()
+	 * */
+	public static int bitLengthVarLong (long n)
+	{
+		return 8 * Math.max(1, (70 - Long.numberOfLeadingZeros(n)) / 7);
+	}
 }
@@ -0,0 +1,146 @@
+import java.io.*;
+
+/** Codec ids used by BlockFileWriter and BlockFileReader.
+ * A codec is identified by a 4-bit id and a 6-bit parameter, which are
+ * stored in front of every block so that the reader can dispatch on them.
+ * All codecs encode non-negative values n (0 &le; n &le; Long.MAX_VALUE - 1).
+ * */
+public final class BlockCodec
+{
+	/** Exp-Golomb coding. The parameter is k (0 &le; k &le; 31).
+	 * k = 0 is the same as Elias Gamma coding of n + 1.
+	 * */
+	public static final int EXPGOLOMB = 0;
+	/** Fibonacci coding of n + 1. The parameter is ignored. */
+	public static final int FIBONACCI = 1;
+	/** Fixed width integer. The parameter is the number of bits (0 &le; bits &le; 63). */
+	public static final int FIXED = 2;
+	/** Elias Delta coding of n + 1. The parameter is ignored. */
+	public static final int DELTA = 3;
+	/** Elias Omega coding of n + 1. The parameter is ignored. */
+	public static final int OMEGA = 4;
+	/** Byte-aligned LEB128 varint. The parameter is ignored.
+	 * It is larger than the bit codes but faster to decode, so CodecAnalyzer never chooses it.
+	 * */
+	public static final int VARINT = 5;
+
+	static final int CODEC_BITS = 4;
+	static final int PARAM_BITS = 6;
+
+	private BlockCodec () {}
+
+	static void checkCodec (int codec, int param)
+	{
+		switch (codec) {
+		case EXPGOLOMB:
+			if (param < 0 || param > 31)
+				throw new IllegalArgumentException("invalid k for EXPGOLOMB. k=" + param);
+			break;
+		case FIBONACCI:
+		case DELTA:
+		case OMEGA:
+		case VARINT:
+			break;
+		case FIXED:
+			if (param < 0 || param > 63)
+				throw new IllegalArgumentException("invalid bits for FIXED. bits=" + param);
+			break;
+		default:
+			throw new IllegalArgumentException("unknown codec " + codec);
+		}
+	}
+
+	/** Number of bits BlockCodec.write(out, codec, param, n) writes.
+	 * The value is computed from bit lengths only; nothing is encoded.
+	 * For VARINT, write() calls sync() first, and the 0 to 7 bits it pads
+	 * depend on the current bit position, so they are not included: the
+	 * result is exact only when <code>out</code> is at a byte boundary.
+	 * @param n 0 &le; n &le; Long.MAX_VALUE - 1
+	 * */
+	public static int bitLength (int codec, int param, long n)
+	{
+		switch (codec) {
+		case EXPGOLOMB:
+			return BitOutputStream.bitLengthExpGolombK(n, param);
+		case FIBONACCI:
+			return BitOutputStream.bitLengthFibonacci(n + 1);
+		case DELTA:
+			return BitOutputStream.bitLengthEliasDelta(n + 1);
+		case OMEGA:
+			return BitOutputStream.bitLengthEliasOmega(n + 1);
+		case VARINT:
+			return BitOutputStream.bitLengthVarLong(n);
+		case FIXED:
+			return param;
+		default:
+			throw new IllegalArgumentException("unknown codec " + codec);
+		}
+	}
+
+	/** Write a single value using the given codec.
+	 * */
+	public static void write (BitOutputStream out, int codec, int param, long n) throws IOException
+	{
+		if (n < 0 || n == Long.MAX_VALUE)
+			throw new IllegalArgumentException("n = " + n + " is out of range");
+		switch (codec) {
+		case EXPGOLOMB:
+			out.writeExpGolombK(n, param);
+			break;
+		case FIBONACCI:
+			out.writeFibonacci(n + 1);
+			break;
+		case DELTA:
+			out.writeEliasDelta(n + 1);
+			break;
+		case OMEGA:
+			out.writeEliasOmega(n + 1);
+			break;
+		case VARINT:
+			out.writeVarLong(n);
+			break;
+		case FIXED:
+			if ((n >>> param) != 0)
+				throw new IllegalArgumentException("n = " + n + " does not fit in " + param + " bits");
+			// writeFixedInt takes at most 31 bits, so write the most significant chunk first.
+			for (int bits = param; bits > 0; ) {
+				int chunk = (bits - 1) % 31 + 1;
+				bits -= chunk;
+				out.writeFixedInt((int)(n >>> bits), chunk);
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("unknown codec " + codec);
+		}
+	}
+
+	/** Read a single value using the given codec.
+	 * */
+	public static long read (BitInputStream in, int codec, int param) throws IOException
+	{
+		switch (codec) {
+		case EXPGOLOMB:
+			return in.readExpGolombK(param);
+		case FIBONACCI:
+			return in.readFibonacciLong() - 1;
+		case DELTA:
+			return in.readEliasDeltaLong() - 1;
+		case OMEGA:
+			return in.readEliasOmegaLong() - 1;
+		case VARINT:
+			return in.readVarLong();
+		case FIXED:
+		{
+			long n = 0;
+			for (int bits = param; bits > 0; ) {
+				int chunk = (bits - 1) % 31 + 1;
+				bits -= chunk;
+				n = (n << chunk) | in.readFixedInt(chunk);
+			}
+			return n;
+		}
+		default:
+			throw new IOException("unknown codec " + codec);
+		}
+	}
+}
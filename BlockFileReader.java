@@ -0,0 +1,267 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+/** BlockFileReader gives random access to a file written by BlockFileWriter.
+ * Only the footer is read when the file is opened. Blocks are read with
+ * positional FileChannel reads and decoded on demand, so the cost of a lookup
+ * is proportional to the blocks touched rather than the file size.
+ *
+ * <blockquote><pre>
+ * BlockFileReader reader = new BlockFileReader(new File("foo"));
+ * long v = reader.get(123456789l); // decodes a single block
+ * for (int b : reader.findBlocks(1000, 2000)) // skips blocks by their min/max
+ *     process(reader.readBlock(b));
+ * reader.close();</pre></blockquote>
+ *
+ * Positional reads do not change the channel position, so readBlock() can be
+ * called from multiple threads at the same time. This is what the spliterators
+ * rely on: they split at block boundaries, so parallel streams decode disjoint
+ * blocks without boxing or copying into arrays first.
+ *
+ * <blockquote><pre>
+ * long sum = reader.longStream(true).filter(v -&gt; v &gt; 100).sum();</pre></blockquote>
+ * */
+public class BlockFileReader implements Closeable
+{
+	private static final int FOOTER_ENTRY_SIZE = 28;
+
+	private FileChannel channel;
+	private final long footerOffset;
+	private final int blockCount;
+	private final long [] offsets;
+	private final int [] counts;
+	private final long [] firsts; // index of the first value of each block, plus the total at the end
+	private final long [] mins;
+	private final long [] maxs;
+
+	private int cachedBlock = -1;
+	private long [] cachedValues;
+
+	/** Open the file for reading. The channel is closed by close(). */
+	public BlockFileReader (File file) throws IOException
+	{
+		this(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+	}
+
+	/** Read the footer from <code>channel</code>. The channel is closed by close(),
+	 * or before the exception is thrown if the footer cannot be read.
+	 * */
+	public BlockFileReader (FileChannel channel) throws IOException
+	{
+		this.channel = channel;
+		try {
+			long size = channel.size();
+			if (size < BlockFileWriter.HEADER_SIZE + BlockFileWriter.TRAILER_SIZE + 4)
+				throw new IOException("file too small to be a block file");
+
+			ByteBuffer header = readAt(0, BlockFileWriter.HEADER_SIZE);
+			if (header.getInt() != BlockFileWriter.MAGIC)
+				throw new IOException("bad magic in header");
+			if (header.get() != BlockFileWriter.VERSION)
+				throw new IOException("unsupported version");
+
+			ByteBuffer trailer = readAt(size - BlockFileWriter.TRAILER_SIZE, BlockFileWriter.TRAILER_SIZE);
+			footerOffset = trailer.getLong();
+			if (trailer.getInt() != BlockFileWriter.MAGIC)
+				throw new IOException("bad magic in trailer");
+			long footerSize = size - BlockFileWriter.TRAILER_SIZE - footerOffset;
+			if (footerOffset < BlockFileWriter.HEADER_SIZE || footerSize < 4 || footerSize > Integer.MAX_VALUE)
+				throw new IOException("bad footer offset " + footerOffset);
+
+			ByteBuffer footer = readAt(footerOffset, (int)footerSize);
+			blockCount = footer.getInt();
+			if (blockCount < 0 || (long)blockCount * FOOTER_ENTRY_SIZE != footerSize - 4)
+				throw new IOException("bad block count " + blockCount);
+			offsets = new long [blockCount];
+			counts = new int [blockCount];
+			firsts = new long [blockCount + 1];
+			mins = new long [blockCount];
+			maxs = new long [blockCount];
+			for (int i = 0; i < blockCount; i ++) {
+				offsets[i] = footer.getLong();
+				counts[i] = footer.getInt();
+				mins[i] = footer.getLong();
+				maxs[i] = footer.getLong();
+				firsts[i + 1] = firsts[i] + counts[i];
+			}
+			// check the index here, so that readBlock() can trust it
+			for (int i = 0; i < blockCount; i ++) {
+				long end = i + 1 < blockCount ? offsets[i + 1] : footerOffset;
+				if (offsets[i] < BlockFileWriter.HEADER_SIZE || offsets[i] >= end)
+					throw new IOException("bad offset " + offsets[i] + " of block " + i);
+				if (end - offsets[i] > BlockFileWriter.MAX_BLOCK_BYTES)
+					throw new IOException("block " + i + " is " + (end - offsets[i]) + " bytes, more than " + BlockFileWriter.MAX_BLOCK_BYTES);
+				if (counts[i] <= 0)
+					throw new IOException("bad value count " + counts[i] + " of block " + i);
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private ByteBuffer readAt (long pos, int len) throws IOException
+	{
+		ByteBuffer buf = ByteBuffer.allocate(len);
+		while (buf.hasRemaining()) {
+			if (channel.read(buf, pos + buf.position()) < 0)
+				throw new EOFException();
+		}
+		buf.flip();
+		return buf;
+	}
+
+	public int getBlockCount ()
+	{
+		return blockCount;
+	}
+
+	/** @return total number of values in all blocks */
+	public long getValueCount ()
+	{
+		return firsts[blockCount];
+	}
+
+	public int getBlockValueCount (int block)
+	{
+		return counts[block];
+	}
+
+	/** @return index of the first value of <code>block</code> */
+	public long getBlockFirstIndex (int block)
+	{
+		return firsts[block];
+	}
+
+	public long getBlockMin (int block)
+	{
+		return mins[block];
+	}
+
+	public long getBlockMax (int block)
+	{
+		return maxs[block];
+	}
+
+	/** Read and decode a single block.
+	 * @return a newly allocated array of getBlockValueCount(block) values
+	 * @throws IOException if the block is corrupt
+	 * */
+	public long [] readBlock (int block) throws IOException
+	{
+		if (block < 0 || block >= blockCount)
+			throw new IndexOutOfBoundsException("block " + block + " out of range [0," + blockCount + ")");
+		long end = block + 1 < blockCount ? offsets[block + 1] : footerOffset;
+		ByteBuffer buf = readAt(offsets[block], (int)(end - offsets[block]));
+		BitInputStream in = new BitInputStream(new ByteArrayInputStream(buf.array(), 0, buf.limit()));
+		long [] values;
+		// the decoders report bad input as IllegalArgumentException or by indexing past their tables
+		try {
+			int codec = in.readFixedInt(BlockCodec.CODEC_BITS);
+			int param = in.readFixedInt(BlockCodec.PARAM_BITS);
+			BlockCodec.checkCodec(codec, param);
+			int count = in.readEliasGamma();
+			if (count != counts[block])
+				throw new IOException("block " + block + " has " + count + " values, footer says " + counts[block]);
+			values = new long [count];
+			for (int i = 0; i < count; i ++)
+				values[i] = BlockCodec.read(in, codec, param);
+		} catch (EOFException e) {
+			throw new IOException("corrupt block " + block + ": decoding runs past its end", e);
+		} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+			throw new IOException("corrupt block " + block, e);
+		}
+		if (in.available() != 0)
+			throw new IOException("corrupt block " + block + ": " + in.available() + " bytes left after decoding");
+		return values;
+	}
+
+	/** Find the block containing the value at <code>index</code>.
+	 * @param index 0 &le; index &lt; getValueCount()
+	 * */
+	public int findBlock (long index)
+	{
+		if (index < 0 || index >= firsts[blockCount])
+			throw new IndexOutOfBoundsException("index " + index + " out of range [0," + firsts[blockCount] + ")");
+		int pos = Arrays.binarySearch(firsts, 0, blockCount, index);
+		return pos >= 0 ? pos : -pos - 2;
+	}
+
+	/** Get the value at <code>index</code>.
+	 * Only the block containing it is decoded. The last decoded block is cached.
+	 * @param index 0 &le; index &lt; getValueCount()
+	 * */
+	public synchronized long get (long index) throws IOException
+	{
+		int block = findBlock(index);
+		if (block != cachedBlock) {
+			cachedValues = readBlock(block);
+			cachedBlock = block;
+		}
+		return cachedValues[(int)(index - firsts[block])];
+	}
+
+	/** Find the blocks which may contain values in [low, high], according to the min/max in the footer.
+	 * @return block numbers in increasing order
+	 * */
+	public int [] findBlocks (long low, long high)
+	{
+		int [] result = new int [blockCount];
+		int n = 0;
+		for (int i = 0; i < blockCount; i ++) {
+			if (mins[i] <= high && maxs[i] >= low)
+				result[n ++] = i;
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/** @return a Spliterator over all values, which splits at block boundaries */
+	public Spliterator.OfLong spliterator ()
+	{
+		return new BlockSpliterator.OfLong(this, 0, blockCount);
+	}
+
+	/** Same as spliterator(), but every value must fit in an int.
+	 * ArithmeticException is thrown otherwise.
+	 * */
+	public Spliterator.OfInt intSpliterator ()
+	{
+		return new BlockSpliterator.OfInt(this, 0, blockCount);
+	}
+
+	/** IOException during decoding is rethrown as UncheckedIOException. */
+	public PrimitiveIterator.OfLong iterator ()
+	{
+		return Spliterators.iterator(spliterator());
+	}
+
+	/** IOException during decoding is rethrown as UncheckedIOException. */
+	public PrimitiveIterator.OfInt intIterator ()
+	{
+		return Spliterators.iterator(intSpliterator());
+	}
+
+	/** IOException during decoding is rethrown as UncheckedIOException. */
+	public LongStream longStream (boolean parallel)
+	{
+		return StreamSupport.longStream(spliterator(), parallel);
+	}
+
+	/** IOException during decoding is rethrown as UncheckedIOException. */
+	public IntStream intStream (boolean parallel)
+	{
+		return StreamSupport.intStream(intSpliterator(), parallel);
+	}
+
+	/** Close the underlying FileChannel
+	 * */
+	public void close () throws IOException
+	{
+		channel.close();
+		channel = null;
+	}
+}
@@ -0,0 +1,176 @@
+import java.io.*;
+import java.util.*;
+
+/** BlockFileWriter writes non-negative long values (0 &le; n &le; Long.MAX_VALUE - 1)
+ * into an indexed block file that BlockFileReader can access randomly.
+ *
+ * <p>File layout. All multi-byte integers are big-endian.
+ * <blockquote><pre>
+ * header : int magic, byte version
+ * block  : codec (4 bits), param (6 bits), EliasGamma(count), count values, padded by sync()
+ * ...
+ * footer : int blockCount, then for each block: long offset, int count, long min, long max
+ * trailer: long footerOffset, int magic</pre></blockquote>
+ *
+ * Every block starts at a byte boundary, so a reader only needs the footer
+ * to locate and decode any single block. The codec is either fixed for the
+ * whole file or chosen per block by CodecAnalyzer.
+ *
+ * <blockquote><pre>
+ * BlockFileWriter writer = new BlockFileWriter(new BufferedOutputStream(new FileOutputStream("foo")),
+ *         BlockCodec.EXPGOLOMB, 2, 4096);
+ * for (long v : values)
+ *     writer.add(v);
+ * writer.close();</pre></blockquote>
+ * */
+public class BlockFileWriter implements Closeable
+{
+	static final int MAGIC = 0x42495442; // "BITB"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 5;
+	static final int TRAILER_SIZE = 12;
+	/** Largest block in bytes, so that a reader can hold a block in a byte array. */
+	static final int MAX_BLOCK_BYTES = Integer.MAX_VALUE - 8;
+
+	private BitOutputStream out;
+	private final CodecAnalyzer analyzer; // null if the codec is fixed
+	private final int fixedCodec;
+	private final int fixedParam;
+	private final long [] values;
+	private int count;
+
+	private int blockCount;
+	private long [] offsets = new long [16];
+	private int [] counts = new int [16];
+	private long [] mins = new long [16];
+	private long [] maxs = new long [16];
+
+	/** Write every block with the same codec.
+	 * @param out the underlying OutputStream. It is recommanded to wrap it with BufferedOutputStream.
+	 * @param codec one of the codec ids in BlockCodec
+	 * @param param the codec parameter
+	 * @param blockSize maximum number of values in a block
+	 * */
+	public BlockFileWriter (OutputStream out, int codec, int param, int blockSize) throws IOException
+	{
+		this(out, null, checkCodec(codec, param), param, blockSize);
+	}
+
+	/** check the codec before the constructor writes anything */
+	private static int checkCodec (int codec, int param)
+	{
+		BlockCodec.checkCodec(codec, param);
+		return codec;
+	}
+
+	/** Choose the cheapest codec for each block with CodecAnalyzer.
+	 * @param out the underlying OutputStream. It is recommanded to wrap it with BufferedOutputStream.
+	 * @param blockSize maximum number of values in a block
+	 * */
+	public BlockFileWriter (OutputStream out, int blockSize) throws IOException
+	{
+		this(out, new CodecAnalyzer(), 0, 0, blockSize);
+	}
+
+	private BlockFileWriter (OutputStream out, CodecAnalyzer analyzer, int codec, int param, int blockSize) throws IOException
+	{
+		if (blockSize <= 0)
+			throw new IllegalArgumentException("blockSize <= 0 is not allowed");
+		this.out = new BitOutputStream(out);
+		this.analyzer = analyzer;
+		this.fixedCodec = codec;
+		this.fixedParam = param;
+		this.values = new long [blockSize];
+		DataOutputStream dout = new DataOutputStream(this.out);
+		dout.writeInt(MAGIC);
+		dout.writeByte(VERSION);
+	}
+
+	/** Append a value. A block is written once blockSize values are buffered.
+	 * @param n 0 &le; n &le; Long.MAX_VALUE - 1
+	 * */
+	public void add (long n) throws IOException
+	{
+		if (n < 0 || n == Long.MAX_VALUE)
+			throw new IllegalArgumentException("n = " + n + " is out of range");
+		values[count ++] = n;
+		if (count == values.length)
+			endBlock();
+	}
+
+	/** Write the buffered values as a block, even if there are fewer than blockSize of them.
+	 * Nothing is written if no value is buffered.
+	 * */
+	public void endBlock () throws IOException
+	{
+		if (count == 0)
+			return;
+		if (blockCount == offsets.length)
+			growIndex();
+
+		long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+		for (int i = 0; i < count; i ++) {
+			min = Math.min(min, values[i]);
+			max = Math.max(max, values[i]);
+		}
+		int codec = fixedCodec, param = fixedParam;
+		long bits;
+		if (analyzer != null) {
+			analyzer.analyze(values, 0, count);
+			codec = analyzer.getCodec();
+			param = analyzer.getParam();
+			bits = analyzer.getBits();
+		} else {
+			bits = 0;
+			for (int i = 0; i < count; i ++)
+				bits += BlockCodec.bitLength(codec, param, values[i]);
+		}
+		// header, plus up to 7 bits padded in front of VARINT data
+		bits += BlockCodec.CODEC_BITS + BlockCodec.PARAM_BITS + BitOutputStream.bitLengthEliasGamma(count) + 7;
+		if ((bits + 7) >>> 3 > MAX_BLOCK_BYTES)
+			throw new IOException("block of " + count + " values takes " + ((bits + 7) >>> 3)
+					+ " bytes, more than " + MAX_BLOCK_BYTES + ". Use a smaller blockSize.");
+		offsets[blockCount] = out.syncLong();
+		counts[blockCount] = count;
+		mins[blockCount] = min;
+		maxs[blockCount] = max;
+		blockCount ++;
+
+		out.writeFixedInt(codec, BlockCodec.CODEC_BITS);
+		out.writeFixedInt(param, BlockCodec.PARAM_BITS);
+		out.writeEliasGamma(count);
+		for (int i = 0; i < count; i ++)
+			BlockCodec.write(out, codec, param, values[i]);
+		out.sync();
+		count = 0;
+	}
+
+	private void growIndex ()
+	{
+		int n = offsets.length * 2;
+		offsets = Arrays.copyOf(offsets, n);
+		counts = Arrays.copyOf(counts, n);
+		mins = Arrays.copyOf(mins, n);
+		maxs = Arrays.copyOf(maxs, n);
+	}
+
+	/** Write the last block and the footer, then close the underlying OutputStream.
+	 * */
+	public void close () throws IOException
+	{
+		endBlock();
+		long footerOffset = out.syncLong();
+		DataOutputStream dout = new DataOutputStream(out);
+		dout.writeInt(blockCount);
+		for (int i = 0; i < blockCount; i ++) {
+			dout.writeLong(offsets[i]);
+			dout.writeInt(counts[i]);
+			dout.writeLong(mins[i]);
+			dout.writeLong(maxs[i]);
+		}
+		dout.writeLong(footerOffset);
+		dout.writeInt(MAGIC);
+		out.close();
+		out = null;
+	}
+}
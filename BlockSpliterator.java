@@ -0,0 +1,151 @@
+import java.io.*;
+import java.util.*;
+import java.util.function.*;
+
+/** Spliterator over the values of a range of blocks in a BlockFileReader.
+ * Splitting happens at block boundaries, which are the sync() points of the
+ * underlying bit stream, so each half decodes its own blocks independently.
+ * Values are delivered as primitives; nothing is boxed.
+ * */
+abstract class BlockSpliterator
+{
+	final BlockFileReader reader;
+	int block;     // next block to decode
+	final int end; // exclusive
+	long [] values;
+	int pos;
+
+	BlockSpliterator (BlockFileReader reader, int block, int end)
+	{
+		this.reader = reader;
+		this.block = block;
+		this.end = end;
+	}
+
+	/** Make <code>values</code> non-empty, decoding the next block if needed.
+	 * @return false if there are no more values.
+	 * */
+	final boolean fill ()
+	{
+		if (values != null && pos < values.length)
+			return true;
+		if (block >= end)
+			return false;
+		values = readBlock(block ++);
+		pos = 0;
+		return true;
+	}
+
+	final long [] readBlock (int b)
+	{
+		try {
+			return reader.readBlock(b);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/** Hand the decoded values and the blocks before prefix.end to <code>prefix</code>.
+	 * */
+	final void splitInto (BlockSpliterator prefix)
+	{
+		prefix.values = values;
+		prefix.pos = pos;
+		values = null;
+		block = prefix.end;
+	}
+
+	/** @return the block to split at, or -1 if there are fewer than 2 blocks left.
+	 * */
+	final int splitPoint ()
+	{
+		return end - block < 2 ? -1 : (block + end) >>> 1;
+	}
+
+	public long estimateSize ()
+	{
+		long n = reader.getBlockFirstIndex(end) - reader.getBlockFirstIndex(block);
+		return values == null ? n : n + values.length - pos;
+	}
+
+	public int characteristics ()
+	{
+		return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED
+				| Spliterator.NONNULL | Spliterator.IMMUTABLE;
+	}
+
+	static final class OfLong extends BlockSpliterator implements Spliterator.OfLong
+	{
+		OfLong (BlockFileReader reader, int block, int end)
+		{
+			super(reader, block, end);
+		}
+
+		public boolean tryAdvance (LongConsumer action)
+		{
+			if (!fill())
+				return false;
+			action.accept(values[pos ++]);
+			return true;
+		}
+
+		public void forEachRemaining (LongConsumer action)
+		{
+			while (fill()) {
+				long [] arr = values;
+				for (int i = pos; i < arr.length; i ++)
+					action.accept(arr[i]);
+				pos = arr.length;
+			}
+		}
+
+		public Spliterator.OfLong trySplit ()
+		{
+			int mid = splitPoint();
+			if (mid < 0)
+				return null;
+			BlockSpliterator.OfLong prefix = new BlockSpliterator.OfLong(reader, block, mid);
+			splitInto(prefix);
+			return prefix;
+		}
+	}
+
+	/** Same as OfLong, but every value must fit in an int.
+	 * ArithmeticException is thrown otherwise.
+	 * */
+	static final class OfInt extends BlockSpliterator implements Spliterator.OfInt
+	{
+		OfInt (BlockFileReader reader, int block, int end)
+		{
+			super(reader, block, end);
+		}
+
+		public boolean tryAdvance (IntConsumer action)
+		{
+			if (!fill())
+				return false;
+			action.accept(Math.toIntExact(values[pos ++]));
+			return true;
+		}
+
+		public void forEachRemaining (IntConsumer action)
+		{
+			while (fill()) {
+				long [] arr = values;
+				for (int i = pos; i < arr.length; i ++)
+					action.accept(Math.toIntExact(arr[i]));
+				pos = arr.length;
+			}
+		}
+
+		public Spliterator.OfInt trySplit ()
+		{
+			int mid = splitPoint();
+			if (mid < 0)
+				return null;
+			BlockSpliterator.OfInt prefix = new BlockSpliterator.OfInt(reader, block, mid);
+			splitInto(prefix);
+			return prefix;
+		}
+	}
+}
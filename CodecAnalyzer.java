@@ -0,0 +1,122 @@
+import java.util.*;
+
+/** CodecAnalyzer finds the codec in BlockCodec which encodes a set of values in the fewest bits.
+ * The exact cost of every codec and parameter is computed with BlockCodec.bitLength(),
+ * which only looks at bit lengths, so it is cheap enough to run on every block during ingestion.
+ * An analyzer keeps its results between calls and can be reused for the next block.
+ *
+ * <blockquote><pre>
+ * CodecAnalyzer analyzer = new CodecAnalyzer();
+ * analyzer.analyze(values, 0, values.length);
+ * for (long v : values)
+ *     BlockCodec.write(out, analyzer.getCodec(), analyzer.getParam(), v);</pre></blockquote>
+ * */
+public class CodecAnalyzer
+{
+	private int count;
+	private final long [] expGolombBits = new long [32];
+	private int maxK;
+	private long fibonacciBits;
+	private long deltaBits;
+	private long omegaBits;
+	private int fixedWidth;
+	private long fixedBits;
+
+	private int codec;
+	private int param;
+	private long bits;
+
+	/** Compute the cost of every codec for values[off .. off+len-1] and choose the cheapest one.
+	 * @param values 0 &le; values[i] &le; Long.MAX_VALUE - 1
+	 * */
+	public void analyze (long [] values, int off, int len)
+	{
+		long max = 0;
+		for (int i = off; i < off + len; i ++) {
+			if (values[i] < 0 || values[i] == Long.MAX_VALUE)
+				throw new IllegalArgumentException("n = " + values[i] + " is out of range");
+			max = Math.max(max, values[i]);
+		}
+		count = len;
+		fixedWidth = 64 - Long.numberOfLeadingZeros(max);
+		fixedBits = (long)fixedWidth * len;
+
+		// k larger than the width of max only adds bits, so there is no need to try it.
+		maxK = Math.min(31, fixedWidth);
+		Arrays.fill(expGolombBits, 0);
+		fibonacciBits = deltaBits = omegaBits = 0;
+		for (int i = off; i < off + len; i ++) {
+			long n = values[i];
+			for (int k = 0; k <= maxK; k ++)
+				expGolombBits[k] += BlockCodec.bitLength(BlockCodec.EXPGOLOMB, k, n);
+			fibonacciBits += BlockCodec.bitLength(BlockCodec.FIBONACCI, 0, n);
+			deltaBits += BlockCodec.bitLength(BlockCodec.DELTA, 0, n);
+			omegaBits += BlockCodec.bitLength(BlockCodec.OMEGA, 0, n);
+		}
+
+		codec = BlockCodec.FIXED;
+		param = fixedWidth;
+		bits = fixedBits;
+		for (int k = 0; k <= maxK; k ++) {
+			if (expGolombBits[k] < bits) {
+				codec = BlockCodec.EXPGOLOMB;
+				param = k;
+				bits = expGolombBits[k];
+			}
+		}
+		if (fibonacciBits < bits) {
+			codec = BlockCodec.FIBONACCI;
+			param = 0;
+			bits = fibonacciBits;
+		}
+		if (deltaBits < bits) {
+			codec = BlockCodec.DELTA;
+			param = 0;
+			bits = deltaBits;
+		}
+		if (omegaBits < bits) {
+			codec = BlockCodec.OMEGA;
+			param = 0;
+			bits = omegaBits;
+		}
+	}
+
+	/** @return the codec id of the cheapest codec */
+	public int getCodec ()
+	{
+		return codec;
+	}
+
+	/** @return the parameter of the cheapest codec */
+	public int getParam ()
+	{
+		return param;
+	}
+
+	/** @return the number of bits the values take with the cheapest codec, excluding any header */
+	public long getBits ()
+	{
+		return bits;
+	}
+
+	/** @return the number of bits the values take with the given codec,
+	 * or -1 if the codec cannot encode them or was not evaluated.
+	 * */
+	public long getBits (int codec, int param)
+	{
+		switch (codec) {
+		case BlockCodec.EXPGOLOMB:
+			return param >= 0 && param <= maxK ? expGolombBits[param] : -1;
+		case BlockCodec.FIBONACCI:
+			return fibonacciBits;
+		case BlockCodec.DELTA:
+			return deltaBits;
+		case BlockCodec.OMEGA:
+			return omegaBits;
+		case BlockCodec.FIXED:
+			return param >= fixedWidth && param <= 63 ? (long)count * param : -1;
+		default:
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,285 @@
+import java.io.*;
+import java.util.concurrent.atomic.*;
+
+/** ConcurrentBitWriter lets multiple threads write one contiguous bit stream.
+ * Each thread reserves a range of bits, which it can size exactly with the
+ * BitOutputStream.bitLength* functions, and then fills the range through a
+ * Region without any locking. Reservation is a CAS on the end of the stream,
+ * so ranges are disjoint and packed back to back, but the order of the ranges
+ * follows the order of reservation. Callers who need a fixed order can compute
+ * the offsets themselves (e.g. by a prefix sum of the lengths) and use region().
+ *
+ * <p>Bits are kept in 32-bit words. A word entirely inside a region is stored
+ * with a plain atomic set; the first and last word of a region may be shared
+ * with the neighbouring regions, so they are merged with a CAS loop.
+ *
+ * <blockquote><pre>
+ * ConcurrentBitWriter writer = new ConcurrentBitWriter(1 &lt;&lt; 20);
+ * // in each thread
+ * ConcurrentBitWriter.Region r = writer.reserve(BitOutputStream.bitLengthEliasGamma(n));
+ * r.writeEliasGamma(n);
+ * r.close();
+ * // after all threads are joined
+ * byte [] arr = writer.toByteArray();</pre></blockquote>
+ *
+ * The result is the same as writing the regions in order to a BitOutputStream and calling sync().
+ * */
+public class ConcurrentBitWriter
+{
+	/** Largest capacity in bits: the words are kept in a single array, which
+	 * the JVM limits to a little under Integer.MAX_VALUE elements.
+	 * */
+	public static final long MAX_CAPACITY = ((long)Integer.MAX_VALUE - 8) << 5;
+
+	private final long capacity;
+	private final AtomicIntegerArray words;
+	private final AtomicLong length = new AtomicLong();
+
+	/** @param capacity maximum number of bits, 0 &le; capacity &le; MAX_CAPACITY
+	 * */
+	public ConcurrentBitWriter (long capacity)
+	{
+		if (capacity < 0 || capacity > MAX_CAPACITY)
+			throw new IllegalArgumentException("capacity is not in the range of [0," + MAX_CAPACITY + "]. capacity=" + capacity);
+		this.capacity = capacity;
+		this.words = new AtomicIntegerArray((int)((capacity + 31) >>> 5));
+	}
+
+	/** Reserve the next <code>bits</code> bits of the stream.
+	 * @throws IllegalStateException if the capacity is exceeded
+	 * */
+	public Region reserve (long bits)
+	{
+		if (bits < 0)
+			throw new IllegalArgumentException("bits is negative");
+		while (true) {
+			long start = length.get();
+			if (bits > capacity - start)
+				throw new IllegalStateException("capacity " + capacity + " exceeded");
+			if (length.compareAndSet(start, start + bits))
+				return new Region(start, start + bits);
+		}
+	}
+
+	/** Get a region at a position chosen by the caller.
+	 * The caller is responsible for making regions disjoint; reserve() must not be used together with it.
+	 * */
+	public Region region (long start, long bits)
+	{
+		if (start < 0 || start > capacity || bits < 0 || bits > capacity - start)
+			throw new IllegalArgumentException("region of " + bits + " bits at " + start + " is out of [0," + capacity + ")");
+		length.accumulateAndGet(start + bits, Math::max);
+		return new Region(start, start + bits);
+	}
+
+	/** @return the number of bits reserved so far */
+	public long getBitLength ()
+	{
+		return length.get();
+	}
+
+	/** Copy the stream to a byte array, padding 0s to byte boundary.
+	 * All regions must have been closed, and the writing threads must have been joined.
+	 * */
+	public byte [] toByteArray ()
+	{
+		long bits = length.get();
+		if ((bits + 7) >>> 3 > Integer.MAX_VALUE)
+			throw new IllegalStateException("too large for a byte array, use writeTo()");
+		byte [] arr = new byte [(int)((bits + 7) >>> 3)];
+		for (int i = 0; i < arr.length; i ++)
+			arr[i] = (byte)(words.get(i >>> 2) >>> (24 - 8 * (i & 3)));
+		return arr;
+	}
+
+	/** Write the stream to <code>out</code>, padding 0s to byte boundary.
+	 * All regions must have been closed, and the writing threads must have been joined.
+	 * */
+	public void writeTo (OutputStream out) throws IOException
+	{
+		long bytes = (length.get() + 7) >>> 3;
+		for (long i = 0; i < bytes; i ++)
+			out.write(words.get((int)(i >>> 2)) >>> (24 - 8 * (int)(i & 3)));
+	}
+
+	/** A range of bits owned by a single thread.
+	 * The write functions produce the same bits as those of BitOutputStream.
+	 * close() must be called when done, otherwise the last word may be lost.
+	 * */
+	public class Region implements Closeable
+	{
+		private final long start;
+		private final long end;
+		private long pos;
+		private int word; // pending bits of the word containing pos
+
+		Region (long start, long end)
+		{
+			this.start = start;
+			this.end = end;
+			this.pos = start;
+		}
+
+		/** @return number of bits not written yet */
+		public long remaining ()
+		{
+			return end - pos;
+		}
+
+		/** write the least <i>bits</i> bits of <i>n</i>, 0 &le; bits &le; 63 */
+		private void put (long n, int bits)
+		{
+			if (bits > end - pos)
+				throw new IllegalStateException("region overflow");
+			while (bits > 0) {
+				int avail = 32 - (int)(pos & 31);
+				int take = Math.min(avail, bits);
+				bits -= take;
+				int chunk = (int)(n >>> bits) & (int)((1l << take) - 1);
+				word |= chunk << (avail - take); // avail - take is 0 when take is 32
+				pos += take;
+				if ((pos & 31) == 0)
+					commit();
+			}
+		}
+
+		/** store the pending word. Only edge words can be shared with other regions. */
+		private void commit ()
+		{
+			int index = (int)((pos - 1) >>> 5);
+			long wordStart = (long)index << 5;
+			if (wordStart >= start && wordStart + 32 <= end) {
+				words.set(index, word);
+			} else {
+				int old;
+				do {
+					old = words.get(index);
+				} while (!words.compareAndSet(index, old, old | word));
+			}
+			word = 0;
+		}
+
+		/** Store the pending bits. Unwritten bits of the region stay 0.
+		 * */
+		public void close ()
+		{
+			if ((pos & 31) != 0)
+				commit();
+		}
+
+		public void writeBit (int bit)
+		{
+			if (bit != 0 && bit != 1)
+				throw new IllegalArgumentException("bit is not boolean");
+			put(bit, 1);
+		}
+
+		public void writeBoolean (boolean bit)
+		{
+			put(bit ? 1 : 0, 1);
+		}
+
+		/** Skip <i>bits</i> bits, which are 0 already.
+		 * @param bits bits &ge; 0 */
+		public void writeZeros (long bits)
+		{
+			if (bits < 0)
+				throw new IllegalArgumentException("bits is negative");
+			if (bits > end - pos)
+				throw new IllegalStateException("region overflow");
+			while (bits > 0) {
+				int take = (int)Math.min(32 - (pos & 31), bits);
+				pos += take;
+				bits -= take;
+				if ((pos & 31) == 0)
+					commit();
+			}
+		}
+
+		/** @param n n &ge; 0 */
+		public void writeUnary (int n)
+		{
+			if (n < 0)
+				throw new IllegalArgumentException("n < 0 is not allowed");
+			writeZeros(n);
+			put(1, 1);
+		}
+
+		/** @param bits 0 &le; bits &le; 31 */
+		public void writeFixedInt (int n, int bits)
+		{
+			if (bits < 0 || bits > 31)
+				throw new IllegalArgumentException("bits is not in the range of [0,31]. bits=" + bits);
+			put(n, bits);
+		}
+
+		/** @param n  1 &le; n &le; Integer.MAX_VALUE */
+		public void writeEliasGamma (int n)
+		{
+			writeEliasGamma((long)n);
+		}
+
+		/** @param n  1 &le; n &le; Long.MAX_VALUE */
+		public void writeEliasGamma (long n)
+		{
+			if (n <= 0)
+				throw new IllegalArgumentException("n <= 0 is not allowed in Elias Gamma code");
+			int bits = 64 - Long.numberOfLeadingZeros(n);
+			writeZeros(bits - 1);
+			put(n, bits);
+		}
+
+		/** @param n  -1073741823 &le; n &le; 1073741823 */
+		public void writeEliasGammaAlt (int n)
+		{
+			if (n < -(Integer.MAX_VALUE-1)/2 || n > (Integer.MAX_VALUE-1)/2)
+				throw new IllegalArgumentException("n = " + n + " is not allowed in EliasGammaAlt");
+			if (n == 0)
+				put(1, 1);
+			else
+				writeEliasGamma(n > 0 ? n * 2 : -n * 2 + 1);
+		}
+
+		/** @param n  0 &le; n &le; Long.MAX_VALUE - 1
+		 * @param k  0 &le; k &le; 31
+		 * */
+		public void writeExpGolombK (long n, int k)
+		{
+			writeEliasGamma((n >>> k) + 1);
+			writeFixedInt((int)n, k);
+		}
+
+		/** @param n 1 &le; n &le; Integer.MAX_VALUE */
+		public void writeFibonacci (int n)
+		{
+			writeFibonacci((long)n);
+		}
+
+		/** Same code words as BitOutputStream.writeFibonacci.
+		 * @param n 1 &le; n &le; Long.MAX_VALUE
+		 * */
+		public void writeFibonacci (long n)
+		{
+			int length = BitOutputStream.bitLengthFibonacci(n);
+			if (length > end - pos)
+				throw new IllegalStateException("region overflow");
+			int fibn = length - 2; // fibSeriesLong[fibn] is the largest fib number that is <= n.
+
+			/* we cut it into maximum 3 chunks, each 31 bits.
+			 * |0... buf[0] ...30|31... buf[1] ...61|62... buf[2] ...92| */
+			int [] buf = new int [3];
+			for (int i = fibn; i >= 0; i --) {
+				if (n >= BitOutputStream.fibSeriesLong[i]) {
+					n -= BitOutputStream.fibSeriesLong[i];
+					buf[i / 31] |= 1 << (30 - i % 31);
+				}
+			}
+			assert n == 0;
+			for (int c = 0; c * 31 <= fibn; c ++) {
+				int bits = Math.min(31, fibn + 1 - c * 31);
+				put(buf[c] >>> (31 - bits), bits);
+			}
+			put(1, 1);
+		}
+	}
+}
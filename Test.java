@@ -1,4 +1,7 @@
 import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
 
 public class Test {
 	private static void testEmpty () throws Exception
@@ -78,9 +81,503 @@ public class Test {
 		assert reader.readFibonacciLong() == Long.MAX_VALUE - 1000;
 	}
 
+	private interface FileTest
+	{
+		void run (File file) throws Exception;
+	}
+
+	/** run <code>test</code> with a temporary file, which is deleted afterwards */
+	private static void withTempFile (FileTest test) throws Exception
+	{
+		File file = File.createTempFile("bitstream", ".blk");
+		try {
+			test.run(file);
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static OutputStream openOutput (File file) throws IOException
+	{
+		return new BufferedOutputStream(new FileOutputStream(file));
+	}
+
+	private static void testBlockFile () throws Exception
+	{
+		withTempFile(file -> {
+			BlockFileWriter writer = new BlockFileWriter(openOutput(file), BlockCodec.EXPGOLOMB, 3, 100);
+			for (long i = 0; i < 1000; i ++)
+				writer.add(i * i);
+			writer.close();
+
+			BlockFileReader reader = new BlockFileReader(file);
+			assert reader.getBlockCount() == 10;
+			assert reader.getValueCount() == 1000;
+			assert reader.get(0) == 0;
+			assert reader.get(999) == 999l * 999l;
+			assert reader.get(150) == 150l * 150l;
+			assert reader.get(100) == 100l * 100l;
+			assert reader.getBlockMin(2) == 200l * 200l;
+			assert reader.getBlockMax(2) == 299l * 299l;
+			int [] blocks = reader.findBlocks(250l * 250l, 420l * 420l);
+			assert blocks.length == 3 && blocks[0] == 2 && blocks[2] == 4;
+			long [] arr = reader.readBlock(4);
+			assert arr.length == 100 && arr[99] == 499l * 499l;
+			reader.close();
+
+			for (int codec : new int [] {BlockCodec.FIBONACCI, BlockCodec.FIXED}) {
+				writer = new BlockFileWriter(openOutput(file), codec, 63, 7);
+				writer.add(Long.MAX_VALUE - 1);
+				for (long i = 0; i < 20; i ++)
+					writer.add(i);
+				writer.close();
+				reader = new BlockFileReader(file);
+				assert reader.getBlockCount() == 3;
+				assert reader.get(0) == Long.MAX_VALUE - 1;
+				assert reader.get(20) == 19;
+				reader.close();
+			}
+
+			// a corrupt block header fails as IOException when the block is read
+			for (int first : new int [] {0x0f, 0xf0, 0x1f}) {
+				writer = new BlockFileWriter(openOutput(file), BlockCodec.EXPGOLOMB, 3, 100);
+				for (long i = 0; i < 200; i ++)
+					writer.add(i);
+				writer.close();
+				RandomAccessFile patch = new RandomAccessFile(file, "rw");
+				patch.seek(BlockFileWriter.HEADER_SIZE);
+				patch.write(first);
+				patch.close();
+				reader = new BlockFileReader(file);
+				try {
+					reader.readBlock(0);
+					assert false;
+				} catch (IOException e) {
+				}
+				assert reader.readBlock(1)[99] == 199;
+				reader.close();
+			}
+
+			// a footer whose block offsets go backwards is rejected when opened
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			raf.seek(raf.length() - 12);
+			long footerOffset = raf.readLong();
+			raf.seek(footerOffset + 4 + 28);
+			raf.writeLong(1);
+			raf.close();
+			try {
+				new BlockFileReader(file);
+				assert false;
+			} catch (IOException e) {
+			}
+			FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			try {
+				new BlockFileReader(channel);
+				assert false;
+			} catch (IOException e) {
+			}
+			assert !channel.isOpen();
+		});
+	}
+
+	private static void testBlockStream () throws Exception
+	{
+		withTempFile(file -> {
+			BlockFileWriter writer = new BlockFileWriter(openOutput(file), BlockCodec.EXPGOLOMB, 0, 64);
+			for (long i = 0; i < 10000; i ++)
+				writer.add(i);
+			writer.close();
+
+			BlockFileReader reader = new BlockFileReader(file);
+			assert reader.longStream(false).sum() == 10000l * 9999l / 2;
+			assert reader.longStream(true).sum() == 10000l * 9999l / 2;
+			assert reader.intStream(true).filter(v -> v % 3 == 0).count() == 3334;
+			assert reader.spliterator().estimateSize() == 10000;
+
+			PrimitiveIterator.OfInt it = reader.intIterator();
+			for (int i = 0; i < 10000; i ++)
+				assert it.nextInt() == i;
+			assert !it.hasNext();
+
+			// split after partially consuming the first block
+			Spliterator.OfLong right = reader.spliterator();
+			right.tryAdvance((long v) -> { assert v == 0; });
+			Spliterator.OfLong left = right.trySplit();
+			assert left.estimateSize() + right.estimateSize() == 9999;
+			left.tryAdvance((long v) -> { assert v == 1; });
+			reader.close();
+		});
+	}
+
+	/** number of bits written so far to <code>writer</code>, which writes to <code>out</code> */
+	private static int writtenBits (ByteArrayOutputStream out, BitOutputStream writer) throws Exception
+	{
+		int rem = writer.getBufferSize(); // moves the whole bytes to out first
+		return out.size() * 8 + rem;
+	}
+
+	private static int encodedBits (int codec, int param, long n) throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BitOutputStream writer = new BitOutputStream(out);
+		BlockCodec.write(writer, codec, param, n);
+		return writtenBits(out, writer);
+	}
+
+	private static void testCodecAnalyzer () throws Exception
+	{
+		long [] samples = {0, 1, 2, 3, 7, 8, 100, 1000, 65535, 1l << 40, Long.MAX_VALUE - 1};
+		for (long n : samples) {
+			for (int k = 0; k < 32; k ++)
+				assert BlockCodec.bitLength(BlockCodec.EXPGOLOMB, k, n) == encodedBits(BlockCodec.EXPGOLOMB, k, n);
+			assert BlockCodec.bitLength(BlockCodec.FIBONACCI, 0, n) == encodedBits(BlockCodec.FIBONACCI, 0, n);
+			assert BlockCodec.bitLength(BlockCodec.DELTA, 0, n) == encodedBits(BlockCodec.DELTA, 0, n);
+			assert BlockCodec.bitLength(BlockCodec.OMEGA, 0, n) == encodedBits(BlockCodec.OMEGA, 0, n);
+		}
+		for (long fib : BitOutputStream.fibSeriesLong) {
+			// n + 1 is encoded, so n = fib - 1 is the shortest value of its length
+			for (long n = Math.max(0, fib - 2); n <= fib - 1; n ++)
+				assert BlockCodec.bitLength(BlockCodec.FIBONACCI, 0, n) == encodedBits(BlockCodec.FIBONACCI, 0, n);
+		}
+
+		CodecAnalyzer analyzer = new CodecAnalyzer();
+		long [] small = {1, 0, 2, 1, 0, 0, 3, 1};
+		analyzer.analyze(small, 0, small.length);
+		assert analyzer.getBits() <= analyzer.getBits(BlockCodec.FIXED, 2);
+		long [] flat = new long [100];
+		for (int i = 0; i < flat.length; i ++)
+			flat[i] = 1000 + i * 7;
+		analyzer.analyze(flat, 0, flat.length);
+		assert analyzer.getCodec() == BlockCodec.FIXED && analyzer.getParam() == 11;
+		assert analyzer.getBits() == 1100;
+
+		withTempFile(file -> {
+			BlockFileWriter writer = new BlockFileWriter(openOutput(file), 50);
+			for (int i = 0; i < 50; i ++)
+				writer.add(i % 4);
+			for (int i = 0; i < 50; i ++)
+				writer.add(1000000000l + i * 13);
+			writer.close();
+			BlockFileReader reader = new BlockFileReader(file);
+			for (int i = 0; i < 100; i ++)
+				assert reader.get(i) == (i < 50 ? i % 4 : 1000000000l + (i - 50) * 13);
+			reader.close();
+		});
+
+		// invalid arguments are rejected before anything is written
+		ByteArrayOutputStream bo = new ByteArrayOutputStream();
+		try {
+			new BlockFileWriter(bo, BlockCodec.EXPGOLOMB, 40, 5);
+			assert false;
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new BlockFileWriter(bo, 0);
+			assert false;
+		} catch (IllegalArgumentException e) {
+		}
+		assert bo.size() == 0;
+	}
+
+	private static void testBitLength () throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BitOutputStream writer = new BitOutputStream(out);
+		int total = 0;
+		long [] samples = {1, 2, 3, 4, 7, 8, 1000, 65535, 65536, Integer.MAX_VALUE - 1, 1l << 40, Long.MAX_VALUE - 1};
+		for (long n : samples) {
+			if (n < Integer.MAX_VALUE) {
+				writer.writeUnary((int)n % 100);
+				total += BitOutputStream.bitLengthUnary((int)n % 100);
+				writer.writeEliasGamma((int)n);
+				total += BitOutputStream.bitLengthEliasGamma((int)n);
+				writer.writeFibonacci((int)n);
+				total += BitOutputStream.bitLengthFibonacci((int)n);
+				writer.writeExpGolombK((int)n, 5);
+				total += BitOutputStream.bitLengthExpGolombK((int)n, 5);
+				int alt = (int)(n % 1073741823) * (n % 2 == 0 ? 1 : -1);
+				writer.writeEliasGammaAlt(alt);
+				total += BitOutputStream.bitLengthEliasGammaAlt(alt);
+			}
+			writer.writeEliasGamma(n);
+			total += BitOutputStream.bitLengthEliasGamma(n);
+			writer.writeFibonacci(n);
+			total += BitOutputStream.bitLengthFibonacci(n);
+			writer.writeExpGolombK(n, 31);
+			total += BitOutputStream.bitLengthExpGolombK(n, 31);
+			assert writtenBits(out, writer) == total;
+		}
+		writer.writeEliasGammaAlt(0);
+		total += BitOutputStream.bitLengthEliasGammaAlt(0);
+		assert writtenBits(out, writer) == total;
+		for (int k : new int [] {-1, 32}) {
+			try {
+				BitOutputStream.bitLengthExpGolombK(5, k);
+				assert false;
+			} catch (IllegalArgumentException e) {
+			}
+			try {
+				BitOutputStream.bitLengthExpGolombK(5l, k);
+				assert false;
+			} catch (IllegalArgumentException e) {
+			}
+		}
+	}
+
+	private static void testConcurrentBitWriter () throws Exception
+	{
+		final int threads = 4;
+		final long [][] values = new long [threads][1000];
+		long [] starts = new long [threads + 1];
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BitOutputStream expected = new BitOutputStream(out);
+		for (int t = 0; t < threads; t ++) {
+			starts[t + 1] = starts[t];
+			for (int i = 0; i < values[t].length; i ++) {
+				values[t][i] = (long)(t + 1) * i * i * i + 1;
+				expected.writeEliasGamma(values[t][i]);
+				expected.writeExpGolombK(values[t][i], 3);
+				expected.writeFibonacci(values[t][i]);
+				starts[t + 1] += BitOutputStream.bitLengthEliasGamma(values[t][i]);
+				starts[t + 1] += BitOutputStream.bitLengthExpGolombK(values[t][i], 3);
+				starts[t + 1] += BitOutputStream.bitLengthFibonacci(values[t][i]);
+			}
+			expected.writeBit(1);
+			starts[t + 1] ++;
+		}
+		expected.close();
+
+		final ConcurrentBitWriter writer = new ConcurrentBitWriter(starts[threads]);
+		Thread [] pool = new Thread [threads];
+		for (int t = 0; t < threads; t ++) {
+			final int tt = t;
+			final ConcurrentBitWriter.Region region = writer.region(starts[t], starts[t + 1] - starts[t]);
+			pool[t] = new Thread(() -> {
+				for (long v : values[tt]) {
+					region.writeEliasGamma(v);
+					region.writeExpGolombK(v, 3);
+					region.writeFibonacci(v);
+				}
+				region.writeBit(1);
+				assert region.remaining() == 0;
+				region.close();
+			});
+			pool[t].start();
+		}
+		for (Thread th : pool)
+			th.join();
+		assert Arrays.equals(writer.toByteArray(), out.toByteArray());
+
+		ConcurrentBitWriter small = new ConcurrentBitWriter(20);
+		ConcurrentBitWriter.Region r1 = small.reserve(3);
+		ConcurrentBitWriter.Region r2 = small.reserve(13);
+		r2.writeFixedInt(0x1fff, 13);
+		r1.writeUnary(2);
+		r2.close();
+		r1.close();
+		byte [] arr = small.toByteArray();
+		assert arr.length == 2 && arr[0] == 0x3f && arr[1] == (byte)0xff;
+		try {
+			small.reserve(5);
+			assert false;
+		} catch (IllegalStateException e) {
+		}
+
+		{
+			long [] fibs = {1, 2, 3000, Integer.MAX_VALUE, 3000000000000l, Long.MAX_VALUE - 1000, Long.MAX_VALUE};
+			out = new ByteArrayOutputStream();
+			expected = new BitOutputStream(out);
+			long bits = 0;
+			for (long v : fibs) {
+				expected.writeFibonacci(v);
+				bits += BitOutputStream.bitLengthFibonacci(v);
+			}
+			expected.writeFibonacci(12345);
+			bits += BitOutputStream.bitLengthFibonacci(12345);
+			expected.close();
+			ConcurrentBitWriter fibWriter = new ConcurrentBitWriter(bits);
+			ConcurrentBitWriter.Region r = fibWriter.reserve(bits);
+			for (long v : fibs)
+				r.writeFibonacci(v);
+			r.writeFibonacci(12345);
+			assert r.remaining() == 0;
+			r.close();
+			assert Arrays.equals(fibWriter.toByteArray(), out.toByteArray());
+		}
+
+		{
+			ConcurrentBitWriter w = new ConcurrentBitWriter(64);
+			w.reserve(8);
+			try {
+				w.reserve(Long.MAX_VALUE);
+				assert false;
+			} catch (IllegalStateException e) {
+			}
+			assert w.getBitLength() == 8;
+			long [][] regions = {{8, Long.MAX_VALUE}, {Long.MAX_VALUE, 1}, {65, 0}, {0, 65}, {-1, 1}};
+			for (long [] r : regions) {
+				try {
+					w.region(r[0], r[1]);
+					assert false;
+				} catch (IllegalArgumentException e) {
+				}
+			}
+			assert w.getBitLength() == 8;
+		}
+
+		assert ((ConcurrentBitWriter.MAX_CAPACITY + 31) >>> 5) == Integer.MAX_VALUE - 8;
+		for (long capacity : new long [] {ConcurrentBitWriter.MAX_CAPACITY + 1, 1l << 36, -1}) {
+			try {
+				new ConcurrentBitWriter(capacity);
+				assert false;
+			} catch (IllegalArgumentException e) {
+			}
+		}
+	}
+
+	private static void testEliasDeltaOmega () throws Exception
+	{
+		long [] samples = {1, 2, 3, 4, 7, 8, 15, 16, 17, 100, 1000, 65535, 65536, 1000000,
+			Integer.MAX_VALUE - 1, Integer.MAX_VALUE, 1l << 31, 1l << 32, 3000000000l, 1l << 40,
+			Long.MAX_VALUE - 1000, Long.MAX_VALUE};
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BitOutputStream writer = new BitOutputStream(out);
+		int total = 0;
+		for (long n : samples) {
+			writer.writeEliasDelta(n);
+			total += BitOutputStream.bitLengthEliasDelta(n);
+			writer.writeEliasOmega(n);
+			total += BitOutputStream.bitLengthEliasOmega(n);
+			if (n <= Integer.MAX_VALUE) {
+				writer.writeEliasDelta((int)n);
+				total += BitOutputStream.bitLengthEliasDelta((int)n);
+				writer.writeEliasOmega((int)n);
+				total += BitOutputStream.bitLengthEliasOmega((int)n);
+			}
+			assert writtenBits(out, writer) == total;
+		}
+		writer.writeEliasDelta(samples, 0, samples.length);
+		writer.writeEliasOmega(samples, 0, samples.length);
+		writer.writeEliasDelta(new int [] {5, 6, 7}, 1, 2);
+		writer.writeEliasOmega(new int [] {5, 6, 7}, 0, 2);
+		writer.close();
+
+		// known code words
+		assert BitOutputStream.bitLengthEliasDelta(1) == 1;
+		assert BitOutputStream.bitLengthEliasDelta(17) == 9;
+		assert BitOutputStream.bitLengthEliasOmega(1) == 1;
+		assert BitOutputStream.bitLengthEliasOmega(17) == 11;
+		assert BitOutputStream.bitLengthEliasDelta(1000000000l) < BitOutputStream.bitLengthEliasGamma(1000000000l);
+
+		BitInputStream reader = new BitInputStream(new ByteArrayInputStream(out.toByteArray()));
+		for (long n : samples) {
+			assert reader.readEliasDeltaLong() == n;
+			assert reader.readEliasOmegaLong() == n;
+			if (n <= Integer.MAX_VALUE) {
+				assert reader.readEliasDelta() == n;
+				assert reader.readEliasOmega() == n;
+			}
+		}
+		long [] arr = new long [samples.length];
+		reader.readEliasDeltaLong(arr, 0, arr.length);
+		assert Arrays.equals(arr, samples);
+		reader.readEliasOmegaLong(arr, 0, arr.length);
+		assert Arrays.equals(arr, samples);
+		int [] iarr = new int [4];
+		reader.readEliasDelta(iarr, 0, 2);
+		reader.readEliasOmega(iarr, 2, 2);
+		assert iarr[0] == 6 && iarr[1] == 7 && iarr[2] == 5 && iarr[3] == 6;
+
+		{
+			out = new ByteArrayOutputStream();
+			writer = new BitOutputStream(out);
+			writer.writeEliasOmega(17);
+			writer.close();
+			// 10 100 10001 0
+			byte [] code = out.toByteArray();
+			assert code.length == 2 && code[0] == (byte)0xa4 && code[1] == (byte)0x40;
+		}
+	}
+
+	private static void testVarInt () throws Exception
+	{
+		int [] ints = {0, 1, 127, 128, 255, 256, 65535, 65536, 16777215, 16777216, Integer.MAX_VALUE, -1, 300, 7};
+		long [] longs = {0, 127, 128, 16383, 16384, 1l << 35, Long.MAX_VALUE, -1};
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BitOutputStream writer = new BitOutputStream(out);
+		writer.writeBit(1);
+		for (int n : ints)
+			writer.writeVarInt(n);
+		writer.writeEliasGamma(5);
+		for (long n : longs)
+			writer.writeVarLong(n);
+		writer.writeFixedInt(3, 3);
+		writer.writeGroupVarInt(ints, 0, ints.length);
+		writer.writeGroupVarInt(ints, 2, 5);
+		writer.writeUnary(4);
+		writer.writeStreamVByte(ints, 0, ints.length);
+		writer.writeStreamVByte(ints, 3, 6);
+		writer.writeBit(1);
+		writer.close();
+
+		{
+			ByteArrayOutputStream o = new ByteArrayOutputStream();
+			BitOutputStream w = new BitOutputStream(o);
+			w.writeVarInt(300);
+			w.close();
+			byte [] code = o.toByteArray();
+			assert code.length == 2 && code[0] == (byte)0xac && code[1] == 0x02;
+		}
+
+		{
+			// keys of the standard Stream VByte layout: value 0 in the low bits
+			ByteArrayOutputStream o = new ByteArrayOutputStream();
+			BitOutputStream w = new BitOutputStream(o);
+			w.writeStreamVByte(new int [] {1, 256, 65536, 16777216, 5}, 0, 5);
+			w.close();
+			byte [] expected = {(byte)0xe4, 0x00, 1, 0, 1, 0, 0, 1, 0, 0, 0, 1, 5};
+			assert Arrays.equals(o.toByteArray(), expected);
+		}
+
+		BitInputStream reader = new BitInputStream(new ByteArrayInputStream(out.toByteArray()));
+		assert reader.readBit() == 1;
+		for (int n : ints)
+			assert reader.readVarInt() == n;
+		assert reader.readEliasGamma() == 5;
+		for (long n : longs)
+			assert reader.readVarLong() == n;
+		assert reader.readFixedInt(3) == 3;
+		int [] arr = new int [ints.length];
+		reader.readGroupVarInt(arr, 0, ints.length);
+		assert Arrays.equals(arr, ints);
+		arr = new int [6];
+		reader.readGroupVarInt(arr, 1, 5);
+		assert Arrays.equals(Arrays.copyOfRange(arr, 1, 6), Arrays.copyOfRange(ints, 2, 7));
+		assert reader.readUnary() == 4;
+		arr = new int [ints.length];
+		reader.readStreamVByte(arr, 0, ints.length);
+		assert Arrays.equals(arr, ints);
+		arr = new int [6];
+		reader.readStreamVByte(arr, 0, 6);
+		assert Arrays.equals(arr, Arrays.copyOfRange(ints, 3, 9));
+		assert reader.readBit() == 1;
+		assert reader.read() == -1;
+
+		for (long n : longs)
+			if (n >= 0 && n < Long.MAX_VALUE)
+				assert BlockCodec.bitLength(BlockCodec.VARINT, 0, n) == encodedBits(BlockCodec.VARINT, 0, n);
+	}
+
 	public static void main (String [] args) throws Exception
 	{
 		testEmpty();
 		testAll();
+		testBlockFile();
+		testBlockStream();
+		testCodecAnalyzer();
+		testBitLength();
+		testConcurrentBitWriter();
+		testEliasDeltaOmega();
+		testVarInt();
 	}
 }